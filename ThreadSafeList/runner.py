@@ -1,10 +1,24 @@
+import glob
+import shutil
 import subprocess as sp
+import tempfile
 
-basic_cmd = ["/usr/bin/time", "-f", "\"%e\"", "java", "-jar", "lock-free.jar"]
+# classes are compiled into a temporary directory, so that lock-free.jar
+# and the working tree stay untouched; results go to results.csv and results.json
+classes_dir = tempfile.mkdtemp()
+try:
+    sp.check_call(["javac", "-d", classes_dir] + glob.glob("src/app/*.java"))
 
-for th_num in ["2", "8", "16"]:
-    for ops_num in [str(10**6), str(10**7)]:
-        no_type_cmd = basic_cmd + [th_num, th_num, ops_num]
+    cmd = ["java", "-cp", classes_dir, "app.Benchmark",
+           "lists=blocking,lock-free",
+           "threads=2,8,16",
+           "reads=0.5,0.9,0.99",
+           "keys=1000,10000,100000",
+           "distributions=uniform,zipf",
+           "prefill=0.1,0.5",
+           "warmup=5", "iterations=10", "duration=1000",
+           "csv=results.csv", "json=results.json"]
 
-        sp.check_output(no_type_cmd + ["0"])
-        sp.check_output(no_type_cmd + ["1"])
\ No newline at end of file
+    sp.check_call(cmd)
+finally:
+    shutil.rmtree(classes_dir)
@@ -0,0 +1,531 @@
+package app;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Steady-state throughput and latency benchmark over ThreadSafeList implementations.
+ * Every combination of list type, threads number, read ratio, key range, key
+ * distribution and prefill fraction is run in a fresh list. Threads first run
+ * warmup iterations, whose results are dropped, then throughput iterations and
+ * then the same number of latency iterations. Throughput iterations do not time
+ * single operations, as System.nanoTime costs about as much as a short list
+ * operation. Latency iterations time only every N-th operation (sample=N), the
+ * sampling rate is reported with the results.
+ * Reported numbers exclude JVM startup and JIT warmup.
+ * Parameters are passed as name=value pairs, lists of values are comma separated:
+ * <pre>
+ *   java -cp lock-free.jar app.Benchmark lists=blocking,lock-free threads=2,8,16
+ *        reads=0.5,0.9 keys=1000,100000 distributions=uniform,zipf prefill=0.5
+ *        warmup=5 iterations=10 duration=1000 sample=16 csv=results.csv json=results.json
+ * </pre>
+ */
+public class Benchmark {
+    private static final String BLOCKING_LIST = "blocking";
+    private static final String LOCK_FREE_LIST = "lock-free";
+    private static final String UNIFORM_DISTRIBUTION = "uniform";
+    private static final String ZIPF_DISTRIBUTION = "zipf";
+
+    public static void main(String[] args) {
+        Config config;
+        try {
+            config = Config.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("error: " + e.getMessage());
+            printHelp();
+            System.exit(1);
+            return;
+        }
+        try {
+            List<Result> results = new ArrayList<Result>();
+            System.out.println(Result.CSV_HEADER);
+            for (String listType : config.lists) {
+                for (int threadsNum : config.threads) {
+                    for (double readRatio : config.readRatios) {
+                        for (int keyRange : config.keyRanges) {
+                            for (String distribution : config.distributions) {
+                                for (double prefill : config.prefills) {
+                                    Case benchCase = new Case(listType, threadsNum, readRatio,
+                                                              keyRange, distribution, prefill);
+                                    Result result = runCase(benchCase, config);
+                                    System.out.println(result.toCsv());
+                                    results.add(result);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if (config.csvPath != null) {
+                writeCsv(results, config.csvPath);
+            }
+            if (config.jsonPath != null) {
+                writeJson(results, config.jsonPath);
+            }
+        } catch (Exception e) {
+            System.out.println("error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void printHelp() {
+        System.out.println(
+                "parameters (name=value, values are comma separated):\n" +
+                "  lists=" + BLOCKING_LIST + "," + LOCK_FREE_LIST + "\n" +
+                "  threads=<threads numbers>\n" +
+                "  reads=<fractions of contains operations, the rest are inserts and erases>\n" +
+                "  keys=<key ranges>\n" +
+                "  distributions=" + UNIFORM_DISTRIBUTION + "," + ZIPF_DISTRIBUTION + "\n" +
+                "  prefill=<fractions of key range inserted before run>\n" +
+                "  warmup=<warmup iterations> iterations=<measurement iterations>\n" +
+                "  duration=<iteration duration in milliseconds>\n" +
+                "  sample=<time every N-th operation in latency iterations>\n" +
+                "  seed=<random generators seed>\n" +
+                "  csv=<output file> json=<output file>"
+        );
+    }
+
+    private static Result runCase(Case benchCase, Config config)
+            throws InterruptedException, BrokenBarrierException {
+        ThreadSafeList list = createList(benchCase.listType);
+        prefill(list, benchCase.keyRange, benchCase.prefill, config.seed);
+
+        RunControl control = new RunControl(benchCase.threadsNum);
+        int latencyStart = config.warmupIterations + config.measurementIterations;
+        int totalIterations = latencyStart + config.measurementIterations;
+        List<Worker> workers = new ArrayList<Worker>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < benchCase.threadsNum; i++) {
+            KeyGenerator keys = createKeyGenerator(benchCase.distribution,
+                                                   benchCase.keyRange, config.seed + i + 1);
+            Worker worker = new Worker(list, keys, benchCase.readRatio, config.seed + i + 1,
+                                       control, totalIterations, config.latencySampleEvery);
+            workers.add(worker);
+            threads.add(new Thread(worker));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        double[] throughputs = new double[config.measurementIterations];
+        for (int iteration = 0; iteration < totalIterations; iteration++) {
+            control.measuresLatency = iteration >= latencyStart;
+            control.running = true;
+            control.barrier.await();
+            Thread.sleep(config.iterationMillis);
+            control.running = false;
+            control.barrier.await();
+            if (control.failure != null) {
+                for (Thread t : threads) {
+                    t.join();
+                }
+                throw new RuntimeException("list operation failed: " + control.failure,
+                                           control.failure);
+            }
+            if (iteration < config.warmupIterations) {
+                continue;
+            }
+            if (control.measuresLatency) {
+                for (Worker worker : workers) {
+                    latencies.add(worker.latencies);
+                }
+                continue;
+            }
+            double opsPerSecond = 0;
+            for (Worker worker : workers) {
+                opsPerSecond += worker.operationsNum * 1e9 / worker.elapsedNanos;
+            }
+            throughputs[iteration - config.warmupIterations] = opsPerSecond;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return new Result(benchCase, throughputs, latencies, config.latencySampleEvery);
+    }
+
+    private static ThreadSafeList createList(String listType) {
+        if (listType.equals(BLOCKING_LIST)) {
+            return new BlockingList();
+        }
+        if (listType.equals(LOCK_FREE_LIST)) {
+            return new LockFreeList();
+        }
+        throw new IllegalArgumentException("unknown list type: " + listType);
+    }
+
+    private static KeyGenerator createKeyGenerator(String distribution, int keyRange, long seed) {
+        if (distribution.equals(UNIFORM_DISTRIBUTION)) {
+            return new UniformKeyGenerator(keyRange, seed);
+        }
+        if (distribution.equals(ZIPF_DISTRIBUTION)) {
+            return new ZipfianKeyGenerator(keyRange, seed);
+        }
+        throw new IllegalArgumentException("unknown distribution: " + distribution);
+    }
+
+    /**
+     * Inserts about prefill * keyRange random keys. Keys are inserted in
+     * descending order so that each insertion stops at the head of the list.
+     */
+    private static void prefill(ThreadSafeList list, int keyRange, double prefill, long seed) {
+        Random gen = new Random(seed);
+        for (int key = keyRange - 1; key >= 0; key--) {
+            if (gen.nextDouble() < prefill) {
+                list.insert(key);
+            }
+        }
+    }
+
+    private static void writeCsv(List<Result> results, String path) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(path));
+        try {
+            writer.println(Result.CSV_HEADER);
+            for (Result result : results) {
+                writer.println(result.toCsv());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeJson(List<Result> results, String path) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(path));
+        try {
+            writer.println("[");
+            for (int i = 0; i < results.size(); i++) {
+                writer.print("  " + results.get(i).toJson());
+                writer.println(i + 1 < results.size() ? "," : "");
+            }
+            writer.println("]");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static class RunControl {
+        final CyclicBarrier barrier;
+        volatile boolean running = false;
+        // set before the barrier that starts an iteration
+        volatile boolean measuresLatency = false;
+        volatile Throwable failure = null;
+
+        RunControl(int threadsNum) {
+            // worker threads plus the thread that controls iterations
+            this.barrier = new CyclicBarrier(threadsNum + 1);
+        }
+    }
+
+    /**
+     * Runs operations until RunControl stops the iteration. Results of an iteration
+     * are published to the controlling thread by the barrier that ends it.
+     * If an operation fails, the worker still reaches that barrier, so the failure
+     * is seen by all threads and they exit instead of waiting for each other.
+     */
+    private static class Worker implements Runnable {
+        private final ThreadSafeList list;
+        private final KeyGenerator keys;
+        private final double readRatio;
+        private final Random gen;
+        private final RunControl control;
+        private final int iterationsNum;
+        private final int sampleEvery;
+
+        final LatencyHistogram latencies = new LatencyHistogram();
+        long operationsNum;
+        long elapsedNanos;
+
+        Worker(ThreadSafeList list, KeyGenerator keys, double readRatio, long seed,
+               RunControl control, int iterationsNum, int sampleEvery) {
+            this.list = list;
+            this.keys = keys;
+            this.readRatio = readRatio;
+            this.gen = new Random(seed);
+            this.control = control;
+            this.iterationsNum = iterationsNum;
+            this.sampleEvery = sampleEvery;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < iterationsNum; i++) {
+                    control.barrier.await();
+                    try {
+                        runIteration();
+                    } catch (Throwable e) {
+                        control.failure = e;
+                    }
+                    control.barrier.await();
+                    if (control.failure != null) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                // exit
+            } catch (BrokenBarrierException e) {
+                // exit
+            }
+        }
+
+        private void runIteration() {
+            latencies.reset();
+            operationsNum = 0;
+            long iterationStart = System.nanoTime();
+            if (control.measuresLatency) {
+                runLatencyIteration();
+            } else {
+                runThroughputIteration();
+            }
+            elapsedNanos = System.nanoTime() - iterationStart;
+        }
+
+        private void runThroughputIteration() {
+            while (control.running) {
+                doOperation();
+                operationsNum++;
+            }
+        }
+
+        private void runLatencyIteration() {
+            int untilSample = sampleEvery;
+            while (control.running) {
+                if (--untilSample == 0) {
+                    untilSample = sampleEvery;
+                    long opStart = System.nanoTime();
+                    doOperation();
+                    latencies.record(System.nanoTime() - opStart);
+                } else {
+                    doOperation();
+                }
+                operationsNum++;
+            }
+        }
+
+        private void doOperation() {
+            int key = keys.nextKey();
+            if (gen.nextDouble() < readRatio) {
+                list.contains(key);
+            } else if (gen.nextBoolean()) {
+                list.insert(key);
+            } else {
+                list.erase(key);
+            }
+        }
+    }
+
+    private static class Case {
+        final String listType;
+        final int threadsNum;
+        final double readRatio;
+        final int keyRange;
+        final String distribution;
+        final double prefill;
+
+        Case(String listType, int threadsNum, double readRatio,
+             int keyRange, String distribution, double prefill) {
+            this.listType = listType;
+            this.threadsNum = threadsNum;
+            this.readRatio = readRatio;
+            this.keyRange = keyRange;
+            this.distribution = distribution;
+            this.prefill = prefill;
+        }
+    }
+
+    private static class Result {
+        static final String CSV_HEADER =
+                "list,threads,reads,keys,distribution,prefill," +
+                "ops_per_sec,ops_per_sec_stddev,latency_sample_every," +
+                "p50_ns,p90_ns,p99_ns,p999_ns,max_ns";
+
+        final Case benchCase;
+        final double opsPerSecond;
+        final double opsPerSecondStdDev;
+        final int latencySampleEvery;
+        final long p50;
+        final long p90;
+        final long p99;
+        final long p999;
+        final long max;
+
+        Result(Case benchCase, double[] throughputs, LatencyHistogram latencies,
+               int latencySampleEvery) {
+            this.benchCase = benchCase;
+            this.latencySampleEvery = latencySampleEvery;
+            double sum = 0;
+            for (double t : throughputs) {
+                sum += t;
+            }
+            double mean = throughputs.length == 0 ? 0 : sum / throughputs.length;
+            double squaresSum = 0;
+            for (double t : throughputs) {
+                squaresSum += (t - mean) * (t - mean);
+            }
+            this.opsPerSecond = mean;
+            this.opsPerSecondStdDev = throughputs.length < 2
+                    ? 0 : Math.sqrt(squaresSum / (throughputs.length - 1));
+            this.p50 = latencies.percentile(0.5);
+            this.p90 = latencies.percentile(0.9);
+            this.p99 = latencies.percentile(0.99);
+            this.p999 = latencies.percentile(0.999);
+            this.max = latencies.getMax();
+        }
+
+        String toCsv() {
+            return String.format(Locale.US, "%s,%d,%.3f,%d,%s,%.3f,%.1f,%.1f,%d,%d,%d,%d,%d,%d",
+                    benchCase.listType, benchCase.threadsNum, benchCase.readRatio,
+                    benchCase.keyRange, benchCase.distribution, benchCase.prefill,
+                    opsPerSecond, opsPerSecondStdDev, latencySampleEvery,
+                    p50, p90, p99, p999, max);
+        }
+
+        String toJson() {
+            return String.format(Locale.US,
+                    "{\"list\": \"%s\", \"threads\": %d, \"reads\": %.3f, \"keys\": %d, " +
+                    "\"distribution\": \"%s\", \"prefill\": %.3f, " +
+                    "\"ops_per_sec\": %.1f, \"ops_per_sec_stddev\": %.1f, " +
+                    "\"latency_sample_every\": %d, " +
+                    "\"latency_ns\": {\"p50\": %d, \"p90\": %d, \"p99\": %d, \"p999\": %d, \"max\": %d}}",
+                    benchCase.listType, benchCase.threadsNum, benchCase.readRatio,
+                    benchCase.keyRange, benchCase.distribution, benchCase.prefill,
+                    opsPerSecond, opsPerSecondStdDev, latencySampleEvery,
+                    p50, p90, p99, p999, max);
+        }
+    }
+
+    private static class Config {
+        List<String> lists = new ArrayList<String>();
+        List<Integer> threads = new ArrayList<Integer>();
+        List<Double> readRatios = new ArrayList<Double>();
+        List<Integer> keyRanges = new ArrayList<Integer>();
+        List<String> distributions = new ArrayList<String>();
+        List<Double> prefills = new ArrayList<Double>();
+        int warmupIterations = 5;
+        int measurementIterations = 10;
+        long iterationMillis = 1000;
+        int latencySampleEvery = 16;
+        long seed = 42;
+        String csvPath = null;
+        String jsonPath = null;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                String[] parts = arg.split("=", 2);
+                if (parts.length != 2 || parts[1].isEmpty()) {
+                    throw new IllegalArgumentException("bad parameter: " + arg);
+                }
+                String name = parts[0];
+                String[] values = parts[1].split(",");
+                try {
+                    if (name.equals("lists")) {
+                        for (String v : values) {
+                            createList(v);
+                            config.lists.add(v);
+                        }
+                    } else if (name.equals("threads")) {
+                        for (String v : values) {
+                            config.threads.add(positiveInt(v));
+                        }
+                    } else if (name.equals("reads")) {
+                        for (String v : values) {
+                            config.readRatios.add(fraction(v));
+                        }
+                    } else if (name.equals("keys")) {
+                        for (String v : values) {
+                            config.keyRanges.add(positiveInt(v));
+                        }
+                    } else if (name.equals("distributions")) {
+                        for (String v : values) {
+                            createKeyGenerator(v, 1, 0);
+                            config.distributions.add(v);
+                        }
+                    } else if (name.equals("prefill")) {
+                        for (String v : values) {
+                            config.prefills.add(fraction(v));
+                        }
+                    } else if (name.equals("warmup")) {
+                        config.warmupIterations = nonNegativeInt(parts[1]);
+                    } else if (name.equals("iterations")) {
+                        config.measurementIterations = positiveInt(parts[1]);
+                    } else if (name.equals("duration")) {
+                        config.iterationMillis = positiveInt(parts[1]);
+                    } else if (name.equals("sample")) {
+                        config.latencySampleEvery = positiveInt(parts[1]);
+                    } else if (name.equals("seed")) {
+                        config.seed = Long.parseLong(parts[1]);
+                    } else if (name.equals("csv")) {
+                        config.csvPath = parts[1];
+                    } else if (name.equals("json")) {
+                        config.jsonPath = parts[1];
+                    } else {
+                        throw new IllegalArgumentException("unknown parameter: " + name);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("parameter " + name + " must be numeric");
+                }
+            }
+            setDefaults(config);
+            return config;
+        }
+
+        private static void setDefaults(Config config) {
+            if (config.lists.isEmpty()) {
+                config.lists.add(BLOCKING_LIST);
+                config.lists.add(LOCK_FREE_LIST);
+            }
+            if (config.threads.isEmpty()) {
+                config.threads.add(2);
+                config.threads.add(8);
+                config.threads.add(16);
+            }
+            if (config.readRatios.isEmpty()) {
+                config.readRatios.add(0.5);
+                config.readRatios.add(0.9);
+            }
+            if (config.keyRanges.isEmpty()) {
+                config.keyRanges.add(1000);
+                config.keyRanges.add(10000);
+            }
+            if (config.distributions.isEmpty()) {
+                config.distributions.add(UNIFORM_DISTRIBUTION);
+                config.distributions.add(ZIPF_DISTRIBUTION);
+            }
+            if (config.prefills.isEmpty()) {
+                config.prefills.add(0.5);
+            }
+        }
+
+        private static int positiveInt(String value) {
+            int result = Integer.parseInt(value);
+            if (result <= 0) {
+                throw new IllegalArgumentException("value must be positive: " + value);
+            }
+            return result;
+        }
+
+        private static int nonNegativeInt(String value) {
+            int result = Integer.parseInt(value);
+            if (result < 0) {
+                throw new IllegalArgumentException("value must not be negative: " + value);
+            }
+            return result;
+        }
+
+        private static double fraction(String value) {
+            double result = Double.parseDouble(value);
+            if (result < 0 || result > 1) {
+                throw new IllegalArgumentException("value must be in [0, 1]: " + value);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package app;
+
+/**
+ * Source of keys for benchmark operations. Instances are not thread-safe,
+ * each benchmark thread owns its own generator.
+ */
+public interface KeyGenerator {
+    public int nextKey();
+}
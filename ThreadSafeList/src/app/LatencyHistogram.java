@@ -0,0 +1,90 @@
+package app;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds. Values below 64 are counted
+ * exactly, larger values fall into one of 32 sub-buckets per power of two, so
+ * reported percentiles are accurate to about 3%.
+ * Not thread-safe: each benchmark thread records into its own histogram and
+ * histograms are merged afterwards.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_LIMIT = 64;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS_NUM = LINEAR_LIMIT + (63 - 6 + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS_NUM];
+    private long totalCount = 0;
+    private long maxValue = 0;
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts[indexOf(value)]++;
+        totalCount++;
+        maxValue = Math.max(maxValue, value);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS_NUM; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        maxValue = Math.max(maxValue, other.maxValue);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        maxValue = 0;
+    }
+
+    public long getTotalCount() { return totalCount; }
+
+    /**
+     * @return exact largest recorded latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long getMax() { return maxValue; }
+
+    /**
+     * Returns latency (lower bound of the bucket) below which the passed
+     * fraction of recorded values falls
+     *
+     * @param fraction value in [0, 1], e.g. 0.99 for 99th percentile
+     * @return latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long percentile(double fraction) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * totalCount);
+        rank = Math.max(1, Math.min(rank, totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_NUM; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(BUCKETS_NUM - 1);
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - 6) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long valueOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + 6;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,20 @@
+package app;
+
+import java.util.Random;
+
+/**
+ * Generates keys uniformly distributed in [0, keyRange)
+ */
+public class UniformKeyGenerator implements KeyGenerator {
+    private final Random gen;
+    private final int keyRange;
+
+    public UniformKeyGenerator(int keyRange, long seed) {
+        this.gen = new Random(seed);
+        this.keyRange = keyRange;
+    }
+
+    public int nextKey() {
+        return gen.nextInt(keyRange);
+    }
+}
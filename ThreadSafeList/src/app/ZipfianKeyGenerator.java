@@ -0,0 +1,81 @@
+package app;
+
+import java.util.Random;
+
+/**
+ * Generates keys in [0, keyRange) following Zipfian distribution, so that a few
+ * keys are requested much more often than the others.
+ * Ranks are produced by the algorithm from Gray et al. "Quickly Generating
+ * Billion-Record Synthetic Databases" and then scattered over the key range by a fixed
+ * permutation, otherwise the hottest keys would all sit at the head of the sorted list.
+ * The permutation does not depend on the seed, so all threads share the same hot keys.
+ */
+public class ZipfianKeyGenerator implements KeyGenerator {
+    public static final double DEFAULT_THETA = 0.99;
+
+    private final Random gen;
+    private final int keyRange;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+    private final long permutationMask;
+    private final int permutationShift;
+
+    public ZipfianKeyGenerator(int keyRange, long seed) {
+        this(keyRange, DEFAULT_THETA, seed);
+    }
+
+    public ZipfianKeyGenerator(int keyRange, double theta, long seed) {
+        this.gen = new Random(seed);
+        this.keyRange = keyRange;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetaN = zeta(keyRange, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / keyRange, 1 - theta)) / (1 - zeta2 / zetaN);
+        int permutationBits = 64 - Long.numberOfLeadingZeros(keyRange - 1);
+        this.permutationMask = (1L << permutationBits) - 1;
+        this.permutationShift = (permutationBits + 1) / 2;
+    }
+
+    public int nextKey() {
+        return scatter(nextRank());
+    }
+
+    private long nextRank() {
+        double u = gen.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        long rank = (long) (keyRange * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, keyRange - 1);
+    }
+
+    /**
+     * Maps rank to key one-to-one. Multiplication by an odd number and xor with own
+     * high bits are both bijections on [0, 2^bits), values that fall out of the key
+     * range are mapped again until they get into it (cycle-walking).
+     */
+    private int scatter(long rank) {
+        long value = rank;
+        do {
+            value = (value * 0x9E3779B97F4A7C15L) & permutationMask;
+            value ^= value >>> permutationShift;
+            value = (value * 0xC2B2AE3D27D4EB4FL) & permutationMask;
+        } while (value >= keyRange);
+        return (int) value;
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1.0 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
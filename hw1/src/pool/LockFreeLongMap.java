@@ -0,0 +1,258 @@
+package pool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Lock-free map with primitive long keys. Keys are spread over a fixed number
+ * of buckets, each bucket is a sorted lock-free list.
+ * Removal first clears node's value and then appends a marker node after it, so
+ * that no insertion can happen after removed node while it is being unlinked
+ * (the same scheme is used by the base level of ConcurrentSkipListMap).
+ * Links are updated with field updaters, so get allocates nothing, insert
+ * allocates only the new node and erase only the marker node.
+ */
+public class LockFreeLongMap<V> {
+    private static final Object HEAD_VALUE = new Object();
+
+    private final Node[] heads;
+    private final int mask;
+
+    /**
+     * @param bucketsNumber number of buckets, rounded up to a power of two
+     */
+    public LockFreeLongMap(int bucketsNumber) {
+        int size = Integer.highestOneBit(Math.max(1, bucketsNumber - 1)) << 1;
+        this.heads = new Node[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            heads[i] = new Node(0, HEAD_VALUE, null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        Node head = headFor(key);
+        retry: while (true) {
+            Node pred = head;
+            Node curr = pred.next;
+            while (true) {
+                if (curr == null) {
+                    return null;
+                }
+                Node succ = curr.next;
+                if (curr != pred.next) {
+                    continue retry;
+                }
+                Object value = curr.value;
+                if (value == null) {
+                    helpDelete(pred, curr, succ);
+                    continue retry;
+                }
+                if (pred.value == null || curr.isMarker()) {
+                    continue retry;
+                }
+                if (key == curr.key) {
+                    return (V) value;
+                }
+                if (key < curr.key) {
+                    return null;
+                }
+                pred = curr;
+                curr = succ;
+            }
+        }
+    }
+
+    /**
+     * Inserts mapping if there is no mapping for the key yet
+     *
+     * @return true if mapping was inserted, false if the key is already present
+     */
+    public boolean insert(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("null values are not supported");
+        }
+        Node head = headFor(key);
+        Node newNode = null;
+        retry: while (true) {
+            Node pred = head;
+            Node curr = pred.next;
+            while (true) {
+                if (curr != null) {
+                    Node succ = curr.next;
+                    if (curr != pred.next) {
+                        continue retry;
+                    }
+                    Object currValue = curr.value;
+                    if (currValue == null) {
+                        helpDelete(pred, curr, succ);
+                        continue retry;
+                    }
+                    if (pred.value == null || curr.isMarker()) {
+                        continue retry;
+                    }
+                    if (key > curr.key) {
+                        pred = curr;
+                        curr = succ;
+                        continue;
+                    }
+                    if (key == curr.key) {
+                        return false;
+                    }
+                }
+                if (newNode == null) {
+                    newNode = new Node(key, value, curr);
+                } else {
+                    newNode.next = curr;
+                }
+                if (!pred.casNext(curr, newNode)) {
+                    continue retry;
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes mapping for the key
+     *
+     * @return removed value or null if there was no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V erase(long key) {
+        Node head = headFor(key);
+        retry: while (true) {
+            Node pred = head;
+            Node curr = pred.next;
+            while (true) {
+                if (curr == null) {
+                    return null;
+                }
+                Node succ = curr.next;
+                if (curr != pred.next) {
+                    continue retry;
+                }
+                Object value = curr.value;
+                if (value == null) {
+                    helpDelete(pred, curr, succ);
+                    continue retry;
+                }
+                if (pred.value == null || curr.isMarker()) {
+                    continue retry;
+                }
+                if (key > curr.key) {
+                    pred = curr;
+                    curr = succ;
+                    continue;
+                }
+                if (key < curr.key) {
+                    return null;
+                }
+                if (!curr.casValue(value, null)) {
+                    continue retry;
+                }
+                if (!curr.casNext(succ, new Node(succ)) || !pred.casNext(curr, succ)) {
+                    // let traversal unlink the node
+                    get(key);
+                }
+                return (V) value;
+            }
+        }
+    }
+
+    /**
+     * Returns values present in the map during the call. Mappings inserted or
+     * removed concurrently may or may not be reflected.
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> result = new ArrayList<>();
+        for (Node head : heads) {
+            for (Node curr = head.next; curr != null; curr = curr.next) {
+                Object value = curr.value;
+                if (value != null && !curr.isMarker()) {
+                    result.add((V) value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns keys present in the map during the call. Mappings inserted or
+     * removed concurrently may or may not be reflected.
+     */
+    public long[] keys() {
+        long[] result = new long[16];
+        int size = 0;
+        for (Node head : heads) {
+            for (Node curr = head.next; curr != null; curr = curr.next) {
+                if (curr.value != null && !curr.isMarker()) {
+                    if (size == result.length) {
+                        result = Arrays.copyOf(result, size * 2);
+                    }
+                    result[size++] = curr.key;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private Node headFor(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return heads[(int) (hash ^ (hash >>> 32)) & mask];
+    }
+
+    /**
+     * Helps to finish removal of curr, whose value is already cleared: either
+     * appends marker after it or unlinks it from pred
+     */
+    private static void helpDelete(Node pred, Node curr, Node succ) {
+        if (succ == curr.next && curr == pred.next) {
+            if (succ == null || !succ.isMarker()) {
+                curr.casNext(succ, new Node(succ));
+            } else {
+                pred.casNext(curr, succ.next);
+            }
+        }
+    }
+
+    private static class Node {
+        private static final AtomicReferenceFieldUpdater<Node, Node> NEXT_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+        private static final AtomicReferenceFieldUpdater<Node, Object> VALUE_UPDATER =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Object.class, "value");
+
+        final long key;
+        volatile Object value;
+        volatile Node next;
+
+        Node(long key, Object value, Node next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        /**
+         * Creates marker node, its value refers to itself
+         */
+        Node(Node next) {
+            this.key = 0;
+            this.value = this;
+            this.next = next;
+        }
+
+        boolean isMarker() { return value == this; }
+
+        boolean casNext(Node expected, Node update) {
+            return NEXT_UPDATER.compareAndSet(this, expected, update);
+        }
+
+        boolean casValue(Object expected, Object update) {
+            return VALUE_UPDATER.compareAndSet(this, expected, update);
+        }
+    }
+}
@@ -7,6 +7,8 @@ public class Main {
     private static final String ADD_COMMAND_PREFIX = "a";
     private static final String RM_COMMAND_PREFIX = "r";
     private static final String QUIT_COMMAND = "q";
+    private static final long DRAIN_TIMEOUT_MILLIS = 10000;
+    private static final long INTERRUPT_TIMEOUT_MILLIS = 2000;
 
     public static void main(String[] args) {
         if(args.length < 2) {
@@ -28,7 +30,7 @@ public class Main {
         }
         System.out.println("waiting active tasks to complete");
         try {
-            threadPool.shutdown();
+            shutdownThreadPool(threadPool);
         } catch (InterruptedException e) {
             System.out.println("resources releasing error, details: " + e.getMessage());
         }
@@ -88,8 +90,7 @@ public class Main {
             public void run() {
                 System.out.println("releasing resources...");
                 try {
-                    threadPool.shutdown();
-                    System.out.println("released successfully");
+                    shutdownThreadPool(threadPool);
                 } catch (InterruptedException e) {
                     System.out.println("resources releasing error, details: " + e.getMessage());
                 }
@@ -98,6 +99,21 @@ public class Main {
         Runtime.getRuntime().addShutdownHook(hook);
     }
 
+    /**
+     * Lets active tasks complete within DRAIN_TIMEOUT_MILLIS, then interrupts the
+     * tasks that are still running
+     */
+    private static void shutdownThreadPool(MyCachedThreadPool threadPool)
+            throws InterruptedException {
+        ShutdownReport report = threadPool.shutdown(ShutdownMode.GRACEFUL_DRAIN,
+                                                    DRAIN_TIMEOUT_MILLIS);
+        if(!report.isTerminated()) {
+            System.out.println("tasks are still running, interrupting them");
+            report = threadPool.shutdown(ShutdownMode.INTERRUPT_ALL, INTERRUPT_TIMEOUT_MILLIS);
+        }
+        System.out.println("shutdown report: " + report);
+    }
+
     private static String getCommand(Scanner consoleReader) throws IOException {
         System.out.print("command> ");
         return consoleReader.nextLine().trim().replaceAll("\\s+", " ");
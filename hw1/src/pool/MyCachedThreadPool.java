@@ -1,7 +1,11 @@
 package pool;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -12,9 +16,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  * number of hot threads is less than maximum number MyCachedThreadPool marks that thread as hot.
  */
 public class MyCachedThreadPool {
+    private static final int REGISTRY_BUCKETS_NUMBER = 1024;
+
     private final TasksProvider tasksProvider = new TasksProvider();
-    private final Map<Long, Worker> workersMap = new ConcurrentHashMap<>();
-    private final Map<Long, Long> tasksMap = new ConcurrentHashMap<>();
+    private final LockFreeLongMap<Worker> workersMap = new LockFreeLongMap<>(REGISTRY_BUCKETS_NUMBER);
+    private final LockFreeLongMap<Worker> tasksMap = new LockFreeLongMap<>(REGISTRY_BUCKETS_NUMBER);
+    private final Queue<Long> cancelledTaskIds = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> interruptedTaskIds = new ConcurrentLinkedQueue<>();
     private final ThreadEventsHandler eventsHandler = new ThreadPoolEventsHandler();
 
     private final int HOT_THREADS_NUMBER;
@@ -26,7 +34,10 @@ public class MyCachedThreadPool {
 
     private final Logger logger;
 
-    private boolean isClosed = false;
+    private volatile boolean isClosed = false;
+    // set once shutdown starts interrupting active tasks
+    private volatile boolean interruptsTasks = false;
+    private final Object shutdownLock = new Object();
 
     public MyCachedThreadPool(int hotThreadsNumber, int timeoutSeconds, Logger logger) {
         this.HOT_THREADS_NUMBER = hotThreadsNumber;
@@ -67,61 +78,110 @@ public class MyCachedThreadPool {
      * task with passed ID
      * @throws Exception if this method is called after closing thread pool
      */
-    public synchronized boolean removeTask(long taskId) throws Exception {
+    public boolean removeTask(long taskId) throws Exception {
         if(isClosed) {
             throw new Exception("thread pool is closed");
         }
-        synchronized (workersMap) {
-            Long workerId = tasksMap.get(taskId);
-            if (workerId != null) {
-                Worker worker = workersMap.get(workerId);
-                worker.getThread().interrupt();
-                return true;
-            }
-            return false;
+        Worker worker = tasksMap.get(taskId);
+        if (worker != null) {
+            worker.getThread().interrupt();
+            return true;
         }
+        return false;
     }
 
     /**
-     * Waits all active tasks to complete and shutdowns this thread pool
+     * Drops queued task, waits all active tasks to complete and shutdowns this thread pool
      *
      * @throws InterruptedException if interrupted during waiting tasks to complete
      */
-    public synchronized void shutdown() throws InterruptedException {
-        if(!isClosed) {
-            synchronized (workersMap) {
-                synchronized (tasksProvider) {
-                    for (Map.Entry<Long, Worker> entry : workersMap.entrySet()) {
-                        entry.getValue().getTaskExecutor().shutdown();
-                    }
-                    for (Map.Entry<Long, Worker> entry : workersMap.entrySet()) {
-                        tasksProvider.notify();
+    public void shutdown() throws InterruptedException {
+        shutdown(ShutdownMode.CANCEL_QUEUED, 0);
+    }
+
+    /**
+     * Shutdowns this thread pool: no new tasks are accepted, all idle executors are
+     * woken at once, tasks are handled according to passed mode and executor threads
+     * are waited to exit until the deadline passes.
+     * May be called again, e.g. with INTERRUPT_ALL mode if previous call reported
+     * that some tasks are still running.
+     *
+     * @param mode defines what is done with queued and active tasks
+     * @param timeoutMillis overall time to wait for executor threads to exit,
+     *                      0 means waiting without time limit
+     * @return report describing tasks that were not completed
+     * @throws InterruptedException if interrupted during waiting tasks to complete
+     */
+    public ShutdownReport shutdown(ShutdownMode mode, long timeoutMillis)
+            throws InterruptedException {
+        if(timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        // nanoTime is not affected by wall-clock adjustments
+        long startTime = System.nanoTime();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (shutdownLock) {
+            synchronized (this) {
+                isClosed = true;
+            }
+            boolean drainQueuedTask = mode == ShutdownMode.GRACEFUL_DRAIN;
+            List<Worker> workers = workersMap.values();
+            synchronized (tasksProvider) {
+                if(!drainQueuedTask && tasksProvider.hasTask()) {
+                    cancelledTaskIds.add(tasksProvider.getTask().getID());
+                }
+                for (Worker worker : workers) {
+                    worker.getTaskExecutor().shutdown(drainQueuedTask);
+                }
+                tasksProvider.notifyAll();
+            }
+            if(mode == ShutdownMode.INTERRUPT_ALL) {
+                interruptsTasks = true;
+                for (Worker worker : workers) {
+                    worker.getThread().interrupt();
+                }
+            }
+            boolean isTerminated = true;
+            for (Worker worker : workers) {
+                if(timeoutMillis == 0) {
+                    worker.getThread().join();
+                } else {
+                    long timeLeft = timeoutNanos - (System.nanoTime() - startTime);
+                    if(timeLeft > 0) {
+                        worker.getThread().join(TimeUnit.NANOSECONDS.toMillis(timeLeft),
+                                                (int) (timeLeft % 1000000));
                     }
                 }
-                for (Map.Entry<Long, Worker> entry : workersMap.entrySet()) {
-                    entry.getValue().getThread().join();
+                isTerminated &= !worker.getThread().isAlive();
+            }
+            synchronized (tasksProvider) {
+                // task that no executor took before the deadline is not run anymore
+                if(tasksProvider.hasTask()) {
+                    cancelledTaskIds.add(tasksProvider.getTask().getID());
                 }
             }
-            isClosed = true;
+            return new ShutdownReport(toArray(cancelledTaskIds), toArray(interruptedTaskIds),
+                                      tasksMap.keys(), isTerminated);
         }
     }
 
     private class ThreadPoolEventsHandler implements ThreadEventsHandler {
         @Override
         public void threadEntersTask(long taskId, long executorId) {
-            tasksMap.put(taskId, executorId);
-            TaskExecutor executor = workersMap.get(executorId).getTaskExecutor();
+            Worker worker = workersMap.get(executorId);
+            tasksMap.insert(taskId, worker);
             readyThreadsNumber.decrementAndGet();
-            executor.makeCold();
+            worker.getTaskExecutor().makeCold();
         }
 
         @Override
-        public synchronized void threadFinishedTask(Task finishedTask) {
+        public void threadFinishedTask(Task finishedTask) {
             if(finishedTask.isDone()) {
                 logIfNeeded("\ntask " + finishedTask.getID() + " is done\n");
+            } else if(interruptsTasks) {
+                interruptedTaskIds.add(finishedTask.getID());
             }
-            Long workerId = tasksMap.remove(finishedTask.getID());
-            TaskExecutor executor = workersMap.get(workerId).getTaskExecutor();
+            TaskExecutor executor = tasksMap.erase(finishedTask.getID()).getTaskExecutor();
             int oldVal = readyThreadsNumber.getAndIncrement();
             if (oldVal < HOT_THREADS_NUMBER) {
                 executor.makeHot();
@@ -130,10 +190,8 @@ public class MyCachedThreadPool {
 
         @Override
         public void threadExitsOnTimeout(long executorId) {
-            synchronized (workersMap) {
-                readyThreadsNumber.decrementAndGet();
-                workersMap.remove(executorId);
-            }
+            readyThreadsNumber.decrementAndGet();
+            workersMap.erase(executorId);
         }
     }
 
@@ -141,12 +199,24 @@ public class MyCachedThreadPool {
         TaskExecutor newExecutor = new TaskExecutor(lastExecutorId, isHot,
                                        THREADS_TIMEOUT, tasksProvider, eventsHandler);
         Thread newThread = new Thread(newExecutor);
-        workersMap.put(lastExecutorId, new Worker(newThread, newExecutor));
+        workersMap.insert(lastExecutorId, new Worker(newThread, newExecutor));
         readyThreadsNumber.incrementAndGet();
         newThread.start();
         ++lastExecutorId;
     }
 
+    private static long[] toArray(Collection<Long> ids) {
+        long[] result = new long[ids.size()];
+        int size = 0;
+        for (Long id : ids) {
+            if (size == result.length) {
+                result = Arrays.copyOf(result, size * 2 + 1);
+            }
+            result[size++] = id;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
     private void logIfNeeded(String msg) {
         if(logger != null) {
             logger.log(msg);
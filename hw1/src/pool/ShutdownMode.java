@@ -0,0 +1,21 @@
+package pool;
+
+/**
+ * Defines what MyCachedThreadPool does with tasks on shutdown
+ *
+ * @see pool.MyCachedThreadPool#shutdown(ShutdownMode, long)
+ */
+public enum ShutdownMode {
+    /**
+     * Queued task is still executed, active tasks are waited to complete
+     */
+    GRACEFUL_DRAIN,
+    /**
+     * Queued task is dropped, active tasks are waited to complete
+     */
+    CANCEL_QUEUED,
+    /**
+     * Queued task is dropped, active tasks are interrupted
+     */
+    INTERRUPT_ALL
+}
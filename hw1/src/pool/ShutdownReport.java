@@ -0,0 +1,71 @@
+package pool;
+
+import java.util.Arrays;
+
+/**
+ * Result of MyCachedThreadPool shutdown. Describes tasks that were not completed
+ * and whether all executor threads exited before the deadline.
+ */
+public class ShutdownReport {
+    private final long[] cancelledTaskIds;
+    private final long[] interruptedTaskIds;
+    private final long[] runningTaskIds;
+    private final boolean isTerminated;
+
+    public ShutdownReport(long[] cancelledTaskIds, long[] interruptedTaskIds,
+                          long[] runningTaskIds, boolean isTerminated) {
+        this.cancelledTaskIds = cancelledTaskIds;
+        this.interruptedTaskIds = interruptedTaskIds;
+        this.runningTaskIds = runningTaskIds;
+        this.isTerminated = isTerminated;
+    }
+
+    /**
+     * @return IDs of queued tasks that were dropped without being started
+     */
+    public long[] getCancelledTaskIds() { return cancelledTaskIds.clone(); }
+
+    /**
+     * @return IDs of active tasks that were interrupted by shutdown
+     */
+    public long[] getInterruptedTaskIds() { return interruptedTaskIds.clone(); }
+
+    /**
+     * @return IDs of tasks that were still running when the deadline passed
+     */
+    public long[] getRunningTaskIds() { return runningTaskIds.clone(); }
+
+    /**
+     * @return sorted IDs of all cancelled, interrupted and still running tasks
+     */
+    public long[] getUnfinishedTaskIds() {
+        long[] all = new long[cancelledTaskIds.length + interruptedTaskIds.length
+                              + runningTaskIds.length];
+        System.arraycopy(cancelledTaskIds, 0, all, 0, cancelledTaskIds.length);
+        System.arraycopy(interruptedTaskIds, 0, all, cancelledTaskIds.length,
+                         interruptedTaskIds.length);
+        System.arraycopy(runningTaskIds, 0, all,
+                         cancelledTaskIds.length + interruptedTaskIds.length, runningTaskIds.length);
+        Arrays.sort(all);
+        int size = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (size == 0 || all[size - 1] != all[i]) {
+                all[size++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, size);
+    }
+
+    /**
+     * @return true if all executor threads exited before the deadline
+     */
+    public boolean isTerminated() { return isTerminated; }
+
+    @Override
+    public String toString() {
+        return "terminated: " + isTerminated +
+               ", cancelled: " + Arrays.toString(cancelledTaskIds) +
+               ", interrupted: " + Arrays.toString(interruptedTaskIds) +
+               ", running: " + Arrays.toString(runningTaskIds);
+    }
+}
@@ -15,7 +15,8 @@ public class TaskExecutor implements Runnable {
     private final TasksProvider tasksProvider;
     private final ThreadEventsHandler threadEventsHandler;
 
-    private boolean shutdownIsCalled = false;
+    private volatile boolean shutdownIsCalled = false;
+    private volatile boolean drainQueuedTask = false;
 
     public TaskExecutor(long id, boolean isHot, int exitTimeoutSeconds,
                         TasksProvider tasksProvider, ThreadEventsHandler threadEventsHandler) {
@@ -35,7 +36,9 @@ public class TaskExecutor implements Runnable {
     @Override
     public void run() {
         try {
-            while (!shutdownIsCalled) {
+            // waitTask decides whether to exit on shutdown, as queued task may still
+            // have to be drained
+            while (true) {
                 Task task = waitTask();
                 if(task == null) {
                     return;
@@ -50,7 +53,16 @@ public class TaskExecutor implements Runnable {
         }
     }
 
-    public void shutdown() { shutdownIsCalled = true; }
+    /**
+     * Makes executor exit instead of waiting for the next task
+     *
+     * @param drainQueuedTask if true, task that is already queued in TasksProvider
+     *                        may still be taken and executed before exit
+     */
+    public void shutdown(boolean drainQueuedTask) {
+        this.drainQueuedTask = drainQueuedTask;
+        shutdownIsCalled = true;
+    }
 
     private Task waitTask() throws InterruptedException {
         synchronized (tasksProvider) {
@@ -69,8 +81,11 @@ public class TaskExecutor implements Runnable {
                     tasksProvider.wait();
                 }
             }
+            if(shutdownIsCalled && !(drainQueuedTask && tasksProvider.hasTask())) {
+                return null;
+            }
             Task task = tasksProvider.getTask();
-            if(task == null || shutdownIsCalled) {
+            if(task == null) {
                 return null;
             }
             threadEventsHandler.threadEntersTask(task.getID(), ID);